@@ -4,6 +4,7 @@ import android.arch.lifecycle.Lifecycle;
 import android.arch.lifecycle.LifecycleOwner;
 import android.support.v4.app.Fragment;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscription;
@@ -46,16 +47,55 @@ import static android.arch.lifecycle.Lifecycle.Event.ON_STOP;
 
 public class RxLifecycle {
 
+    private static final String TAG = "RxLifecycle";
+
+    private static volatile LeakListener leakListener;
+
     private final Subject<Lifecycle.Event> subject = PublishSubject.<Lifecycle.Event>create().toSerialized();
     private final RxLifecycleObserver observer;
     private final Lifecycle lifecycle;
+    private final RxLifecycleLeakDetector leakDetector;
 
     public RxLifecycle(Lifecycle lifecycle) {
         this.observer = new RxLifecycleObserver(subject);
         this.lifecycle = lifecycle;
+        final LeakListener listener = leakListener;
+        this.leakDetector = listener == null ? null : RxLifecycleLeakDetector.of(lifecycle, listener, onDestroy());
         lifecycle.addObserver(observer);
     }
 
+    /**
+     * Debug only : logs the creation stack of the streams bound with the disposeOn* transformers
+     * which are still alive once their owner is destroyed, are bound after it, or emit after it.
+     * See {@link #enableLeakDetection(LeakListener)}
+     */
+    public static void enableLeakDetection() {
+        enableLeakDetection(new LeakListener() {
+            @Override
+            public void onLeak(String message, Throwable creationStack) {
+                Log.w(TAG, message, creationStack);
+            }
+        });
+    }
+
+    /**
+     * Debug only : same as {@link #enableLeakDetection()} but reports to the given listener.
+     * Applies only to the RxLifecycle created afterwards.
+     * The listener is kept in a static field : do not let it capture an Activity or a Fragment,
+     * it would be kept alive until {@link #disableLeakDetection()}
+     */
+    public static void enableLeakDetection(LeakListener listener) {
+        leakListener = listener;
+    }
+
+    /**
+     * Stops the leak detection, including on the RxLifecycle already created, and releases the listener
+     */
+    public static void disableLeakDetection() {
+        leakListener = null;
+        RxLifecycleLeakDetector.releaseAll();
+    }
+
     public static RxLifecycle with(LifecycleOwner lifecycleOwner) {
         return new RxLifecycle(lifecycleOwner.getLifecycle());
     }
@@ -344,7 +384,7 @@ public class RxLifecycle {
         return new RxTransformer<T, T>() {
             @Override
             public Publisher<T> apply(@NonNull Flowable<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Subscription>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Subscription>() {
                     @Override
                     public void accept(@NonNull Subscription subscription) throws Exception {
                         disposeOnDestroy(subscription);
@@ -355,7 +395,7 @@ public class RxLifecycle {
 
             @Override
             public CompletableSource apply(@NonNull Completable upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnDestroy(disposable);
@@ -365,7 +405,7 @@ public class RxLifecycle {
 
             @Override
             public SingleSource<T> apply(@NonNull Single<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnDestroy(disposable);
@@ -375,7 +415,7 @@ public class RxLifecycle {
 
             @Override
             public MaybeSource<T> apply(@NonNull Maybe<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnDestroy(disposable);
@@ -385,7 +425,7 @@ public class RxLifecycle {
 
             @Override
             public ObservableSource<T> apply(@NonNull Observable<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnDestroy(disposable);
@@ -399,7 +439,7 @@ public class RxLifecycle {
         return new RxTransformer<T, T>() {
             @Override
             public Publisher<T> apply(@NonNull Flowable<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Subscription>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Subscription>() {
                     @Override
                     public void accept(@NonNull Subscription subscription) throws Exception {
                         disposeOnPause(subscription);
@@ -410,7 +450,7 @@ public class RxLifecycle {
 
             @Override
             public CompletableSource apply(@NonNull Completable upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnPause(disposable);
@@ -420,7 +460,7 @@ public class RxLifecycle {
 
             @Override
             public SingleSource<T> apply(@NonNull Single<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnPause(disposable);
@@ -430,7 +470,7 @@ public class RxLifecycle {
 
             @Override
             public MaybeSource<T> apply(@NonNull Maybe<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnPause(disposable);
@@ -440,7 +480,7 @@ public class RxLifecycle {
 
             @Override
             public ObservableSource<T> apply(@NonNull Observable<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnPause(disposable);
@@ -454,7 +494,7 @@ public class RxLifecycle {
         return new RxTransformer<T, T>() {
             @Override
             public Publisher<T> apply(@NonNull Flowable<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Subscription>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Subscription>() {
                     @Override
                     public void accept(@NonNull Subscription subscription) throws Exception {
                         disposeOnStop(subscription);
@@ -464,7 +504,7 @@ public class RxLifecycle {
 
             @Override
             public CompletableSource apply(@NonNull Completable upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnStop(disposable);
@@ -474,7 +514,7 @@ public class RxLifecycle {
 
             @Override
             public SingleSource<T> apply(@NonNull Single<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnStop(disposable);
@@ -484,7 +524,7 @@ public class RxLifecycle {
 
             @Override
             public MaybeSource<T> apply(@NonNull Maybe<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnStop(disposable);
@@ -494,7 +534,7 @@ public class RxLifecycle {
 
             @Override
             public ObservableSource<T> apply(@NonNull Observable<T> upstream) {
-                return upstream.doOnSubscribe(new Consumer<Disposable>() {
+                return watch(upstream).doOnSubscribe(new Consumer<Disposable>() {
                     @Override
                     public void accept(@NonNull Disposable disposable) throws Exception {
                         disposeOnStop(disposable);
@@ -541,6 +581,40 @@ public class RxLifecycle {
                 });
     }
 
+    private <T> Flowable<T> watch(Flowable<T> upstream) {
+        return leakDetector == null || leakDetector.isReleased() ? upstream : leakDetector.watch(upstream);
+    }
+
+    private <T> Observable<T> watch(Observable<T> upstream) {
+        return leakDetector == null || leakDetector.isReleased() ? upstream : leakDetector.watch(upstream);
+    }
+
+    private <T> Single<T> watch(Single<T> upstream) {
+        return leakDetector == null || leakDetector.isReleased() ? upstream : leakDetector.watch(upstream);
+    }
+
+    private <T> Maybe<T> watch(Maybe<T> upstream) {
+        return leakDetector == null || leakDetector.isReleased() ? upstream : leakDetector.watch(upstream);
+    }
+
+    private Completable watch(Completable upstream) {
+        return leakDetector == null || leakDetector.isReleased() ? upstream : leakDetector.watch(upstream);
+    }
+
+    /**
+     * Receives the leaks found once leak detection is enabled
+     */
+    public interface LeakListener {
+        /**
+         * Can be called on any thread, from the leaking stream itself.
+         * A RuntimeException thrown here is logged and does not reach the stream
+         *
+         * @param message       what was detected
+         * @param creationStack where the leaking stream was bound
+         */
+        void onLeak(String message, Throwable creationStack);
+    }
+
     public abstract class RxTransformer<U, D> implements ObservableTransformer<U, D>, SingleTransformer<U, D>, MaybeTransformer<U, D>, CompletableTransformer, FlowableTransformer<U, D> {
 
     }
@@ -0,0 +1,409 @@
+package florent37.github.com.rxlifecycle;
+
+import android.arch.lifecycle.Lifecycle;
+import android.util.Log;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.MaybeSource;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+
+/**
+ * Debug helper : weakly tracks the streams bound to a lifecycle and reports,
+ * through a {@link RxLifecycle.LeakListener}, the ones still alive after ON_DESTROY,
+ * the ones bound after it and the emissions reaching an already destroyed owner.
+ * One detector is shared by all the RxLifecycle created on the same Lifecycle.
+ */
+class RxLifecycleLeakDetector {
+
+    private static final String TAG = "RxLifecycle";
+
+    //keeps the footprint bounded when a screen binds a lot of streams, oldest are forgotten first
+    static final int MAX_TRACKED = 128;
+
+    //weak keys : a detector never references its Lifecycle, so it goes away with it
+    private static final Map<Lifecycle, RxLifecycleLeakDetector> DETECTORS = new WeakHashMap<>();
+
+    //null once released by RxLifecycle.disableLeakDetection()
+    private volatile RxLifecycle.LeakListener listener;
+    private final Set<Entry> entries = new LinkedHashSet<>();
+    //set once disposeOnDestroy() had its chance to dispose, written under entries, read without lock on each emission
+    private volatile boolean destroyed;
+    private Disposable onDestroyDisposable;
+
+    private RxLifecycleLeakDetector(RxLifecycle.LeakListener listener, Lifecycle lifecycle, Observable<Lifecycle.Event> onDestroy) {
+        this.listener = listener;
+        if (Lifecycle.State.DESTROYED.equals(lifecycle.getCurrentState())) {
+            //ON_DESTROY already happened, nothing bound now will ever be disposed
+            destroyed = true;
+            return;
+        }
+        onDestroyDisposable = onDestroy.subscribe(new Consumer<Lifecycle.Event>() {
+            @Override
+            public void accept(@NonNull Lifecycle.Event event) throws Exception {
+                //disposeOnDestroy() disposes on a later main thread message, post twice to check after it ran
+                AndroidSchedulers.mainThread().scheduleDirect(new Runnable() {
+                    @Override
+                    public void run() {
+                        AndroidSchedulers.mainThread().scheduleDirect(new Runnable() {
+                            @Override
+                            public void run() {
+                                reportLiveEntries();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    static RxLifecycleLeakDetector of(Lifecycle lifecycle, RxLifecycle.LeakListener listener, Observable<Lifecycle.Event> onDestroy) {
+        synchronized (DETECTORS) {
+            RxLifecycleLeakDetector detector = DETECTORS.get(lifecycle);
+            if (detector == null || detector.listener != listener) {
+                detector = new RxLifecycleLeakDetector(listener, lifecycle, onDestroy);
+                DETECTORS.put(lifecycle, detector);
+            }
+            return detector;
+        }
+    }
+
+    /**
+     * Stops every detector and drops their listener, so nothing it captured is kept alive
+     */
+    static void releaseAll() {
+        synchronized (DETECTORS) {
+            for (RxLifecycleLeakDetector detector : DETECTORS.values()) {
+                detector.release();
+            }
+            DETECTORS.clear();
+        }
+    }
+
+    boolean isReleased() {
+        return listener == null;
+    }
+
+    private void release() {
+        listener = null;
+        if (onDestroyDisposable != null) {
+            onDestroyDisposable.dispose();
+        }
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    <T> Flowable<T> watch(final Flowable<T> upstream) {
+        final Throwable creationStack = new Throwable("stream bound here");
+        return Flowable.defer(new Callable<Publisher<T>>() {
+            @Override
+            public Publisher<T> call() throws Exception {
+                final Entry entry = new Entry(creationStack);
+                return upstream
+                        .doOnSubscribe(new Consumer<Subscription>() {
+                            @Override
+                            public void accept(@NonNull Subscription subscription) throws Exception {
+                                track(entry, subscription);
+                            }
+                        })
+                        .doOnNext(new Consumer<T>() {
+                            @Override
+                            public void accept(@NonNull T value) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(@NonNull Throwable throwable) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                untrack(entry);
+                            }
+                        });
+            }
+        });
+    }
+
+    <T> Observable<T> watch(final Observable<T> upstream) {
+        final Throwable creationStack = new Throwable("stream bound here");
+        return Observable.defer(new Callable<ObservableSource<T>>() {
+            @Override
+            public ObservableSource<T> call() throws Exception {
+                final Entry entry = new Entry(creationStack);
+                return upstream
+                        .doOnSubscribe(new Consumer<Disposable>() {
+                            @Override
+                            public void accept(@NonNull Disposable disposable) throws Exception {
+                                track(entry, disposable);
+                            }
+                        })
+                        .doOnNext(new Consumer<T>() {
+                            @Override
+                            public void accept(@NonNull T value) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(@NonNull Throwable throwable) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                untrack(entry);
+                            }
+                        });
+            }
+        });
+    }
+
+    <T> Single<T> watch(final Single<T> upstream) {
+        final Throwable creationStack = new Throwable("stream bound here");
+        return Single.defer(new Callable<SingleSource<T>>() {
+            @Override
+            public SingleSource<T> call() throws Exception {
+                final Entry entry = new Entry(creationStack);
+                return upstream
+                        .doOnSubscribe(new Consumer<Disposable>() {
+                            @Override
+                            public void accept(@NonNull Disposable disposable) throws Exception {
+                                track(entry, disposable);
+                            }
+                        })
+                        .doOnSuccess(new Consumer<T>() {
+                            @Override
+                            public void accept(@NonNull T value) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(@NonNull Throwable throwable) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                untrack(entry);
+                            }
+                        });
+            }
+        });
+    }
+
+    <T> Maybe<T> watch(final Maybe<T> upstream) {
+        final Throwable creationStack = new Throwable("stream bound here");
+        return Maybe.defer(new Callable<MaybeSource<T>>() {
+            @Override
+            public MaybeSource<T> call() throws Exception {
+                final Entry entry = new Entry(creationStack);
+                return upstream
+                        .doOnSubscribe(new Consumer<Disposable>() {
+                            @Override
+                            public void accept(@NonNull Disposable disposable) throws Exception {
+                                track(entry, disposable);
+                            }
+                        })
+                        .doOnSuccess(new Consumer<T>() {
+                            @Override
+                            public void accept(@NonNull T value) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(@NonNull Throwable throwable) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                untrack(entry);
+                            }
+                        });
+            }
+        });
+    }
+
+    Completable watch(final Completable upstream) {
+        final Throwable creationStack = new Throwable("stream bound here");
+        return Completable.defer(new Callable<CompletableSource>() {
+            @Override
+            public CompletableSource call() throws Exception {
+                final Entry entry = new Entry(creationStack);
+                return upstream
+                        .doOnSubscribe(new Consumer<Disposable>() {
+                            @Override
+                            public void accept(@NonNull Disposable disposable) throws Exception {
+                                track(entry, disposable);
+                            }
+                        })
+                        .doOnComplete(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doOnError(new Consumer<Throwable>() {
+                            @Override
+                            public void accept(@NonNull Throwable throwable) throws Exception {
+                                checkEmission(entry);
+                            }
+                        })
+                        .doFinally(new Action() {
+                            @Override
+                            public void run() throws Exception {
+                                untrack(entry);
+                            }
+                        });
+            }
+        });
+    }
+
+    private void track(Entry entry, Object subscription) {
+        entry.subscription = new WeakReference<>(subscription);
+        if (isReleased()) {
+            return;
+        }
+        synchronized (entries) {
+            if (!destroyed) {
+                if (entries.size() >= MAX_TRACKED) {
+                    evict();
+                }
+                entries.add(entry);
+                return;
+            }
+        }
+        report("stream bound after ON_DESTROY, it will never be disposed", entry.creationStack);
+    }
+
+    //forgets the collected / disposed streams first, the oldest live one only if still full
+    private void evict() {
+        final Iterator<Entry> iterator = entries.iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().isLive()) {
+                iterator.remove();
+            }
+        }
+        if (entries.size() >= MAX_TRACKED) {
+            final Iterator<Entry> oldest = entries.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void untrack(Entry entry) {
+        entry.terminated = true;
+        synchronized (entries) {
+            entries.remove(entry);
+        }
+    }
+
+    private void checkEmission(Entry entry) {
+        if (destroyed && entry.emissionReported.compareAndSet(false, true)) {
+            report("emission received after ON_DESTROY", entry.creationStack);
+        }
+    }
+
+    private void reportLiveEntries() {
+        final List<Entry> live = new ArrayList<>();
+        synchronized (entries) {
+            destroyed = true;
+            for (Entry entry : entries) {
+                if (entry.isLive()) {
+                    live.add(entry);
+                }
+            }
+            entries.clear();
+        }
+        for (Entry entry : live) {
+            report("stream still alive after ON_DESTROY", entry.creationStack);
+        }
+    }
+
+    //a failing listener must not break the stream it watches
+    private void report(String message, Throwable creationStack) {
+        final RxLifecycle.LeakListener listener = this.listener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onLeak(message, creationStack);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "LeakListener failed", e);
+        }
+    }
+
+    private static class Entry {
+        final Throwable creationStack;
+        final AtomicBoolean emissionReported = new AtomicBoolean();
+        volatile WeakReference<Object> subscription;
+        volatile boolean terminated;
+
+        Entry(Throwable creationStack) {
+            this.creationStack = creationStack;
+        }
+
+        boolean isLive() {
+            if (terminated || subscription == null) {
+                return false;
+            }
+            final Object value = subscription.get();
+            if (value instanceof Disposable) {
+                return !((Disposable) value).isDisposed();
+            }
+            return value != null;
+        }
+    }
+}
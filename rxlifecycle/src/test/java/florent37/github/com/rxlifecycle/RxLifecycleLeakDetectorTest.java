@@ -0,0 +1,268 @@
+package florent37.github.com.rxlifecycle;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.LifecycleRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import io.reactivex.Scheduler;
+import io.reactivex.android.plugins.RxAndroidPlugins;
+import io.reactivex.annotations.NonNull;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.CompletableSubject;
+import io.reactivex.subjects.MaybeSubject;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.SingleSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RxLifecycleLeakDetectorTest {
+
+    private static final String LIVE = "stream still alive after ON_DESTROY";
+    private static final String EMISSION = "emission received after ON_DESTROY";
+    private static final String BOUND = "stream bound after ON_DESTROY, it will never be disposed";
+
+    //stands for the main thread Looper : runs the posted messages in order when triggered
+    private final TestScheduler mainThread = new TestScheduler();
+    private final List<String> leaks = new ArrayList<>();
+    private final List<Throwable> creationStacks = new ArrayList<>();
+    private LifecycleRegistry lifecycle;
+    private LifecycleOwner owner;
+
+    @BeforeClass
+    public static void setUpMainThread() {
+        RxAndroidPlugins.setInitMainThreadSchedulerHandler(new Function<Callable<Scheduler>, Scheduler>() {
+            @Override
+            public Scheduler apply(@NonNull Callable<Scheduler> scheduler) throws Exception {
+                return Schedulers.trampoline();
+            }
+        });
+    }
+
+    @Before
+    public void setUp() {
+        RxAndroidPlugins.setMainThreadSchedulerHandler(new Function<Scheduler, Scheduler>() {
+            @Override
+            public Scheduler apply(@NonNull Scheduler scheduler) throws Exception {
+                return mainThread;
+            }
+        });
+        RxJavaPlugins.setNewThreadSchedulerHandler(new Function<Scheduler, Scheduler>() {
+            @Override
+            public Scheduler apply(@NonNull Scheduler scheduler) throws Exception {
+                return Schedulers.trampoline();
+            }
+        });
+
+        owner = new LifecycleOwner() {
+            @Override
+            public Lifecycle getLifecycle() {
+                return lifecycle;
+            }
+        };
+        lifecycle = new LifecycleRegistry(owner);
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_RESUME);
+
+        RxLifecycle.enableLeakDetection(new RxLifecycle.LeakListener() {
+            @Override
+            public void onLeak(String message, Throwable creationStack) {
+                leaks.add(message);
+                creationStacks.add(creationStack);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        RxLifecycle.disableLeakDetection();
+        RxAndroidPlugins.reset();
+        RxJavaPlugins.reset();
+    }
+
+    @Test
+    public void disposeOnDestroy_isNotReported() {
+        final PublishSubject<Integer> source = PublishSubject.create();
+        source.compose(RxLifecycle.<Integer>disposeOnDestroy(lifecycle)).subscribe();
+
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        //emitted before the disposal message ran, the stream is correctly bound
+        source.onNext(1);
+        mainThread.triggerActions();
+
+        assertFalse(source.hasObservers());
+        assertTrue(leaks.isEmpty());
+    }
+
+    @Test
+    public void disposeOnStop_boundAfterStop_isReported() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final PublishSubject<Integer> source = PublishSubject.create();
+        source.compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        mainThread.triggerActions();
+
+        assertEquals(Collections.singletonList(LIVE), leaks);
+    }
+
+    @Test
+    public void emissionAfterDisposal_isReportedOnce() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final PublishSubject<Integer> source = PublishSubject.create();
+        source.compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        mainThread.triggerActions();
+        source.onNext(1);
+        source.onNext(2);
+
+        assertEquals(Arrays.asList(LIVE, EMISSION), leaks);
+    }
+
+    @Test
+    public void boundAfterDestroy_isReported() {
+        final PublishSubject<Integer> bound = PublishSubject.create();
+        bound.compose(RxLifecycle.<Integer>disposeOnDestroy(lifecycle)).subscribe();
+
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        mainThread.triggerActions();
+
+        final PublishSubject<Integer> source = PublishSubject.create();
+        source.compose(RxLifecycle.<Integer>disposeOnDestroy(lifecycle)).subscribe();
+
+        assertEquals(Collections.singletonList(BOUND), leaks);
+    }
+
+    @Test
+    public void failingListener_doesNotBreakTheStream() {
+        RxLifecycle.enableLeakDetection(new RxLifecycle.LeakListener() {
+            @Override
+            public void onLeak(String message, Throwable creationStack) {
+                throw new IllegalStateException(message);
+            }
+        });
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+
+        final PublishSubject<Integer> source = PublishSubject.create();
+        final TestObserver<Integer> observer = source.compose(RxLifecycle.<Integer>disposeOnDestroy(lifecycle)).test();
+        source.onNext(1);
+
+        observer.assertValue(1);
+        observer.assertNoErrors();
+    }
+
+    @Test
+    public void flowable_liveStreamAndEmission_areReported() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final PublishProcessor<Integer> source = PublishProcessor.create();
+        source.compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+
+        destroy();
+        source.onNext(1);
+
+        assertEquals(Arrays.asList(LIVE, EMISSION), leaks);
+    }
+
+    @Test
+    public void single_errorAfterDestroy_isReported() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final SingleSubject<Integer> source = SingleSubject.create();
+        final TestObserver<Integer> observer = source.compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).test();
+
+        destroy();
+        source.onError(new IllegalStateException());
+
+        observer.assertError(IllegalStateException.class);
+        assertEquals(Arrays.asList(LIVE, EMISSION), leaks);
+    }
+
+    @Test
+    public void maybe_emptyCompletionAfterDestroy_isReported() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final MaybeSubject<Integer> source = MaybeSubject.create();
+        source.compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+
+        destroy();
+        source.onComplete();
+
+        assertEquals(Arrays.asList(LIVE, EMISSION), leaks);
+    }
+
+    @Test
+    public void completable_liveStreamAndCompletion_areReported() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final CompletableSubject source = CompletableSubject.create();
+        source.compose(RxLifecycle.<Object>disposeOnStop(lifecycle)).subscribe();
+
+        destroy();
+        source.onComplete();
+
+        assertEquals(Arrays.asList(LIVE, EMISSION), leaks);
+    }
+
+    @Test
+    public void cap_evictsTheOldestLiveStream() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        bindOldest();
+        for (int i = 0; i < RxLifecycleLeakDetector.MAX_TRACKED; i++) {
+            PublishSubject.<Integer>create().compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+        }
+
+        destroy();
+
+        assertEquals(RxLifecycleLeakDetector.MAX_TRACKED, leaks.size());
+        for (Throwable creationStack : creationStacks) {
+            for (StackTraceElement element : creationStack.getStackTrace()) {
+                assertFalse("bindOldest".equals(element.getMethodName()));
+            }
+        }
+    }
+
+    @Test
+    public void disable_stopsExistingDetectors() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_STOP);
+
+        final PublishSubject<Integer> source = PublishSubject.create();
+        source.compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+
+        RxLifecycle.disableLeakDetection();
+        destroy();
+        source.onNext(1);
+
+        assertTrue(leaks.isEmpty());
+    }
+
+    private void bindOldest() {
+        PublishSubject.<Integer>create().compose(RxLifecycle.<Integer>disposeOnStop(lifecycle)).subscribe();
+    }
+
+    //ON_DESTROY, then let the main thread run the disposals and the live streams report
+    private void destroy() {
+        lifecycle.handleLifecycleEvent(Lifecycle.Event.ON_DESTROY);
+        mainThread.triggerActions();
+    }
+}